@@ -1,5 +1,8 @@
 package se.yrgo.mocking;
 
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
 import java.util.*;
 
 import se.yrgo.mocking.model.*;
@@ -9,6 +12,9 @@ import se.yrgo.mocking.service.*;
 /**
  * Simple console-based Lending Management System.
  * 
+ * Started with the argument {@code --batch} the commands are instead read
+ * one per line from the file given as the next argument or from standard input.
+ * 
  */
 public class App {
     
@@ -17,20 +23,38 @@ public class App {
     
     public App(LendingService lendingService) {
         this.lendingService = lendingService;
-        System.out.println(System.in.getClass().getCanonicalName());
         this.scanner = new Scanner(System.in);
     }
     
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        boolean batch = args.length > 0 && args[0].equals("--batch");
+
         // In a real application, these would be injected or configured
         ItemRepository itemRepo = new InMemoryItemRepository();
         UserRepository userRepo = new InMemoryUserRepository();
-        NotificationService notificationService = new ConsoleNotificationService();
+        NotificationService notificationService = batch
+                ? new SilentNotificationService()
+                : new ConsoleNotificationService();
         
         LendingService service = new LendingService(itemRepo, userRepo, notificationService);
         App app = new App(service);
         
-        app.run();
+        if (!batch) {
+            app.run();
+            return;
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        if (args.length > 1) {
+            try (Reader in = Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8)) {
+                app.runBatch(in, out);
+            } catch (NoSuchFileException | AccessDeniedException e) {
+                System.err.println("Error: Can not read file " + args[1]);
+                System.exit(1);
+            }
+        } else {
+            app.runBatch(new InputStreamReader(System.in, StandardCharsets.UTF_8), out);
+        }
     }
     
     public void run() {
@@ -62,6 +86,107 @@ public class App {
         }
     }
     
+    /**
+     * Run commands read one per line without any prompts. The result of each
+     * command is written as one line starting with OK or ERROR. Empty lines and
+     * lines starting with # are ignored. A summary with the number of commands
+     * and the time taken is written to standard error when done.
+     * 
+     * The commands are:
+     * <pre>
+     * ITEM &lt;id&gt; &lt;name&gt; &lt;model...&gt;
+     * USER &lt;id&gt; &lt;email&gt; &lt;name...&gt;
+     * BORROW &lt;user id&gt; &lt;item id&gt;
+     * RETURN &lt;item id&gt;
+     * SEARCH &lt;name...&gt;
+     * AVAILABLE
+     * </pre>
+     * 
+     * @param in the commands to run
+     * @param out where to write the results, flushed when done
+     * @throws IOException if reading or writing fails
+     */
+    public void runBatch(Reader in, Writer out) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader br ? br : new BufferedReader(in);
+        long commands = 0;
+        long start = System.nanoTime();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            commands++;
+            try {
+                out.write(runCommand(line));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                // some exceptions, like those from Objects.requireNonNull, have no message
+                out.write("ERROR " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+            }
+            out.write(System.lineSeparator());
+        }
+
+        out.flush();
+
+        long elapsed = System.nanoTime() - start;
+        System.err.printf("%d commands in %d ms (%.0f commands/s)%n",
+                commands, elapsed / 1_000_000, commands * 1e9 / Math.max(elapsed, 1));
+    }
+
+    private String runCommand(String line) {
+        String[] parts = line.split("\\s+", 4);
+        String command = parts[0].toUpperCase();
+
+        switch (command) {
+            case "ITEM" -> {
+                requireArguments(parts, 4);
+                Item added = lendingService.addItem(new Item(Integer.parseInt(parts[1]), parts[2], parts[3]));
+                return "OK " + added;
+            }
+            case "USER" -> {
+                requireArguments(parts, 4);
+                User registered = lendingService.registerUser(new User(parts[1], parts[3], parts[2]));
+                return "OK " + registered;
+            }
+            case "BORROW" -> {
+                requireArguments(parts, 3);
+                return formatResult(lendingService.tryBorrowItem(parts[1], Integer.parseInt(parts[2])));
+            }
+            case "RETURN" -> {
+                requireArguments(parts, 2);
+                return formatResult(lendingService.tryReturnItem(Integer.parseInt(parts[1])));
+            }
+            case "SEARCH" -> {
+                requireArguments(parts, 2);
+                String name = line.substring(parts[0].length()).trim();
+                return "OK " + lendingService.searchItemsByName(name);
+            }
+            case "AVAILABLE" -> {
+                return "OK " + lendingService.getAvailableItems();
+            }
+            default -> {
+                return "ERROR Unknown command: " + parts[0];
+            }
+        }
+    }
+
+    private static void requireArguments(String[] parts, int count) {
+        if (parts.length < count) {
+            throw new IllegalArgumentException("Too few arguments to " + parts[0]);
+        }
+    }
+
+    private static String formatResult(LendingResult result) {
+        return switch (result) {
+            case LendingResult.Success success -> "OK " + success.item();
+            case LendingResult.Failure failure -> "ERROR " + failure.name();
+        };
+    }
+    
     private void displayMenu() {
         System.out.println("\n--- Main Menu ---");
         System.out.println("1. Add Item");
@@ -111,11 +236,9 @@ public class App {
         int id = scanner.nextInt();
         scanner.nextLine();
         
-        boolean success = lendingService.borrowItem(userId, id);
-        if (success) {
-            System.out.println("Item borrowed successfully!");
-        } else {
-            System.out.println("Failed to borrow item. Check if user exists, item exists, and item is available.");
+        switch (lendingService.tryBorrowItem(userId, id)) {
+            case LendingResult.Success success -> System.out.println("Item borrowed successfully!");
+            case LendingResult.Failure failure -> System.out.println("Failed to borrow item. " + failure.getDescription());
         }
     }
     
@@ -124,11 +247,9 @@ public class App {
         int id = scanner.nextInt();
         scanner.nextLine();
         
-        boolean success = lendingService.returnItem(id);
-        if (success) {
-            System.out.println("Item returned successfully!");
-        } else {
-            System.out.println("Failed to return item. Check if item exists and was actually borrowed.");
+        switch (lendingService.tryReturnItem(id)) {
+            case LendingResult.Success success -> System.out.println("Item returned successfully!");
+            case LendingResult.Failure failure -> System.out.println("Failed to return item. " + failure.getDescription());
         }
     }
     
@@ -232,4 +353,16 @@ public class App {
             return true;
         }
     }
+    
+    private static class SilentNotificationService implements NotificationService {
+        @Override
+        public boolean sendNotification(String userEmail, String subject, String message) {
+            return true;
+        }
+        
+        @Override
+        public boolean sendReminder(String userEmail, String subject, String message) {
+            return true;
+        }
+    }
 }
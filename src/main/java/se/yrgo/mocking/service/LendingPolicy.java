@@ -0,0 +1,315 @@
+package se.yrgo.mocking.service;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Policy limiting how often a user may borrow items and how many
+ * items a user may have borrowed at the same time.
+ *
+ * The rate is limited using a token bucket per user. At most maxTrackedUsers
+ * users are kept track of. When that many are tracked, a new user replaces a
+ * user that has been idle for too long, has no loans and has a full bucket.
+ * If no such user is found among the oldest few, the new user is refused
+ * until one is. The limit should thus be well above the number of users
+ * expected to have loans at the same time.
+ *
+ * The loans are only counted in memory. Loans that already exist when a
+ * LendingService is created are counted by the service, but loans made
+ * directly in the repository afterwards are not. Several services sharing
+ * a policy must use separate item repositories, or loans are counted twice.
+ *
+ * A policy is safe to use from several threads at once.
+ *
+ */
+public class LendingPolicy {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int EVICTION_CANDIDATES = 8;
+
+    private final boolean unlimited;
+    private final int maxLoansPerUser;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final int maxTrackedUsers;
+    private final long idleNanos;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, UserState> users = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<UserState> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger trackedUsers = new AtomicInteger();
+
+    /**
+     * Create a new LendingPolicy.
+     *
+     * @param maxLoansPerUser the number of items a user may have borrowed at the same time
+     * @param operationsPerSecond the number of borrows a user may do per second
+     * @param burst the number of borrows a user may do in a quick succession
+     * @param maxTrackedUsers the number of users to keep track of at most
+     * @param idleTimeout the time after which a user without loans is considered idle
+     *
+     * @throws IllegalArgumentException if any of the numbers are not positive
+     * @throws NullPointerException if idleTimeout is null
+     */
+    public LendingPolicy(int maxLoansPerUser, int operationsPerSecond, int burst,
+            int maxTrackedUsers, Duration idleTimeout) {
+        this(maxLoansPerUser, operationsPerSecond, burst, maxTrackedUsers, idleTimeout, System::nanoTime);
+    }
+
+    LendingPolicy(int maxLoansPerUser, int operationsPerSecond, int burst,
+            int maxTrackedUsers, Duration idleTimeout, LongSupplier clock) {
+
+        Objects.requireNonNull(idleTimeout);
+        Objects.requireNonNull(clock);
+
+        if (maxLoansPerUser <= 0 || operationsPerSecond <= 0 || burst <= 0 || maxTrackedUsers <= 0) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+
+        this.unlimited = false;
+        this.maxLoansPerUser = maxLoansPerUser;
+        this.nanosPerToken = NANOS_PER_SECOND / operationsPerSecond;
+        this.burstNanos = this.nanosPerToken * burst;
+        this.maxTrackedUsers = maxTrackedUsers;
+        this.idleNanos = idleTimeout.toNanos();
+        this.clock = clock;
+    }
+
+    private LendingPolicy() {
+        this.unlimited = true;
+        this.maxLoansPerUser = Integer.MAX_VALUE;
+        this.nanosPerToken = 0;
+        this.burstNanos = 0;
+        this.maxTrackedUsers = 0;
+        this.idleNanos = 0;
+        this.clock = System::nanoTime;
+    }
+
+    /**
+     * Get a policy that allows everything.
+     *
+     * @return a policy without any limits
+     */
+    public static LendingPolicy unlimited() {
+        return new LendingPolicy();
+    }
+
+    /**
+     * The outcome of asking the policy for permission.
+     */
+    public enum Permit {
+        /** The user may continue. */
+        ALLOWED,
+        /** The user has borrowed too many times recently. */
+        RATE_LIMITED,
+        /** The user has as many loans as allowed. */
+        QUOTA_EXCEEDED,
+        /** Too many users are tracked to start tracking this one. */
+        TOO_MANY_USERS
+    }
+
+    /**
+     * Check if this policy allows everything.
+     *
+     * @return true if there are no limits, false otherwise
+     */
+    public boolean isUnlimited() {
+        return unlimited;
+    }
+
+    /**
+     * Try to take a token from the bucket of the given user.
+     *
+     * @param userId the ID of the user doing a borrow
+     * @return whether the user is allowed to continue
+     */
+    public Permit tryAcquire(String userId) {
+        if (unlimited) {
+            return Permit.ALLOWED;
+        }
+
+        long now = clock.getAsLong();
+        UserState state = track(userId, now, false);
+        if (state == null) {
+            return Permit.TOO_MANY_USERS;
+        }
+
+        // The bucket is stored as the time at which it will be full again,
+        // which makes it possible to update it with a single compare and set.
+        while (true) {
+            long full = state.bucketFullAt.get();
+            long next = Math.max(full, now) + nanosPerToken;
+            if (next - now > burstNanos) {
+                return Permit.RATE_LIMITED;
+            }
+
+            if (state.bucketFullAt.compareAndSet(full, next)) {
+                return Permit.ALLOWED;
+            }
+        }
+    }
+
+    /**
+     * Start a loan for the given user, unless the user already has
+     * as many loans as allowed.
+     *
+     * @param userId the ID of the borrowing user
+     * @return whether the loan may be started
+     */
+    public Permit tryStartLoan(String userId) {
+        if (unlimited) {
+            return Permit.ALLOWED;
+        }
+
+        long now = clock.getAsLong();
+        if (track(userId, now, false) == null) {
+            return Permit.TOO_MANY_USERS;
+        }
+
+        boolean[] started = new boolean[1];
+        users.computeIfPresent(userId, (id, state) -> {
+            if (state.loans < maxLoansPerUser) {
+                state.loans++;
+                started[0] = true;
+            }
+            return state;
+        });
+
+        return started[0] ? Permit.ALLOWED : Permit.QUOTA_EXCEEDED;
+    }
+
+    /**
+     * Count a loan that was made before this policy was used, such as loans
+     * stored in the repository before a restart. The loan is counted even if
+     * the user is over the quota or if too many users are tracked.
+     *
+     * @param userId the ID of the user that has borrowed an item
+     */
+    public void countExistingLoan(String userId) {
+        if (unlimited) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        track(userId, now, true);
+        users.computeIfPresent(userId, (id, state) -> {
+            state.loans++;
+            return state;
+        });
+    }
+
+    /**
+     * End a loan for the given user.
+     *
+     * @param userId the ID of the user that returned an item
+     */
+    public void endLoan(String userId) {
+        if (unlimited) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        users.computeIfPresent(userId, (id, state) -> {
+            state.lastSeen = now;
+            if (state.loans > 0) {
+                state.loans--;
+            }
+            return state;
+        });
+    }
+
+    private UserState track(String userId, long now, boolean force) {
+        UserState state = users.get(userId);
+        if (state == null) {
+            if (force) {
+                trackedUsers.incrementAndGet();
+            } else if (!reserveSlot(now)) {
+                return null;
+            }
+
+            UserState created = new UserState(userId, now);
+            state = users.putIfAbsent(userId, created);
+            if (state == null) {
+                evictionQueue.offer(created);
+                return created;
+            }
+
+            // someone else added the user at the same time
+            trackedUsers.decrementAndGet();
+        }
+
+        state.lastSeen = now;
+        return state;
+    }
+
+    private boolean reserveSlot(long now) {
+        for (int attempt = 0; attempt < EVICTION_CANDIDATES; attempt++) {
+            int tracked = trackedUsers.get();
+            if (tracked < maxTrackedUsers) {
+                if (trackedUsers.compareAndSet(tracked, tracked + 1)) {
+                    return true;
+                }
+            } else if (!evictOne(now)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean evictOne(long now) {
+        // Look at a few of the oldest users only, so that adding a user
+        // takes the same time no matter how many users there are.
+        for (int i = 0; i < EVICTION_CANDIDATES; i++) {
+            UserState candidate = evictionQueue.poll();
+            if (candidate == null) {
+                return false;
+            }
+
+            boolean[] evicted = new boolean[1];
+            users.computeIfPresent(candidate.userId, (id, state) -> {
+                if (state == candidate && isEvictable(state, now)) {
+                    evicted[0] = true;
+                    return null;
+                }
+                return state;
+            });
+
+            if (evicted[0]) {
+                trackedUsers.decrementAndGet();
+                return true;
+            }
+
+            evictionQueue.offer(candidate);
+        }
+
+        return false;
+    }
+
+    private boolean isEvictable(UserState state, long now) {
+        // users with loans must keep their count and users with a bucket that
+        // is not full yet must keep it, or they could get around the limits
+        return state.loans == 0
+                && state.bucketFullAt.get() - now <= 0
+                && now - state.lastSeen > idleNanos;
+    }
+
+    private static class UserState {
+        private final String userId;
+        private final AtomicLong bucketFullAt;
+        private volatile long lastSeen;
+        private int loans;
+
+        UserState(String userId, long now) {
+            this.userId = userId;
+            this.bucketFullAt = new AtomicLong(now);
+            this.lastSeen = now;
+        }
+    }
+}
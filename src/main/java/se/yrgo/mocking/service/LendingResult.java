@@ -0,0 +1,82 @@
+package se.yrgo.mocking.service;
+
+import java.util.*;
+
+import se.yrgo.mocking.model.*;
+
+/**
+ * The result of borrowing or returning an item. Either a success containing
+ * the user and the item involved, or one of the reasons for a failure.
+ *
+ * The failures are shared constants and are returned without allocating
+ * anything. A success carries the details of the loan, so a new one is
+ * created for every successful borrow or return.
+ *
+ */
+public sealed interface LendingResult permits LendingResult.Success, LendingResult.Failure {
+
+    /**
+     * Check if the operation succeeded.
+     *
+     * @return true if the operation succeeded, false otherwise
+     */
+    boolean isSuccess();
+
+    /**
+     * A successful borrow or return.
+     *
+     * @param user the user that borrowed or returned the item
+     * @param item the item that was borrowed or returned
+     */
+    record Success(User user, Item item) implements LendingResult {
+        public Success {
+            Objects.requireNonNull(user);
+            Objects.requireNonNull(item);
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return true;
+        }
+    }
+
+    /**
+     * The reasons a borrow or return can fail.
+     */
+    enum Failure implements LendingResult {
+        /** There is no user with the given ID. */
+        UNKNOWN_USER("User does not exist."),
+        /** There is no item with the given ID. */
+        UNKNOWN_ITEM("Item does not exist."),
+        /** The item is already borrowed. */
+        ALREADY_BORROWED("Item is already borrowed."),
+        /** The item is not borrowed and can not be returned. */
+        NOT_BORROWED("Item is not borrowed."),
+        /** The user has borrowed too many times recently. */
+        RATE_LIMITED("Too many requests, try again later."),
+        /** The user has already borrowed as many items as allowed. */
+        QUOTA_EXCEEDED("User has borrowed too many items."),
+        /** Too many users are active, through no fault of this user. */
+        SERVICE_BUSY("Too many active users, try again later.");
+
+        private final String description;
+
+        Failure(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Get a description of the failure suitable for users.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return false;
+        }
+    }
+}
@@ -14,6 +14,7 @@ public class LendingService {
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
     private final NotificationService notificationService;
+    private final LendingPolicy lendingPolicy;
 
     /**
      * Create a new LendingService given a repository for items,
@@ -28,14 +29,44 @@ public class LendingService {
     public LendingService(ItemRepository itemRepository,
             UserRepository userRepository,
             NotificationService notificationService) {
+        this(itemRepository, userRepository, notificationService, LendingPolicy.unlimited());
+    }
+
+    /**
+     * Create a new LendingService given a repository for items,
+     * a repository for users, a service for notifiactions and a policy
+     * limiting the borrows of each user. The loans already in the item
+     * repository are counted by the policy.
+     * 
+     * @param itemRepository the item repository to use
+     * @param userRepository the user repository to use
+     * @param notificationService the notification service
+     * @param lendingPolicy the policy for rate limits and loan quotas
+     * 
+     * @throws NullPointerException if any of the parameters are null
+     */
+    public LendingService(ItemRepository itemRepository,
+            UserRepository userRepository,
+            NotificationService notificationService,
+            LendingPolicy lendingPolicy) {
         
         Objects.requireNonNull(itemRepository);
         Objects.requireNonNull(userRepository);
         Objects.requireNonNull(notificationService);
+        Objects.requireNonNull(lendingPolicy);
 
         this.itemRepository = itemRepository;
         this.userRepository = userRepository;
         this.notificationService = notificationService;
+        this.lendingPolicy = lendingPolicy;
+
+        if (!lendingPolicy.isUnlimited()) {
+            for (var item : itemRepository.findAll()) {
+                if (!item.isAvailable()) {
+                    lendingPolicy.countExistingLoan(item.getBorrower().getUserId());
+                }
+            }
+        }
     }
 
     /**
@@ -84,24 +115,51 @@ public class LendingService {
 
     /**
      * Borrow an item for a user. The borrower will be sent an notification about the loan.
+     * The borrow is refused if the user is rate limited or has too many loans.
      * 
      * @param userId The ID of the user borrowing the item
      * @param itemId The ID of the item to borrow
      * @return true if the item was successfully borrowed, false otherwise
      */
     public boolean borrowItem(String userId, int itemId) {
+        return tryBorrowItem(userId, itemId).isSuccess();
+    }
+
+    /**
+     * Borrow an item for a user. The borrower will be sent an notification about the loan.
+     * The borrow is refused if the user is rate limited or has too many loans.
+     * 
+     * @param userId The ID of the user borrowing the item
+     * @param itemId The ID of the item to borrow
+     * @return the user and item on success, otherwise the reason for the failure
+     */
+    public LendingResult tryBorrowItem(String userId, int itemId) {
         Optional<User> userOpt = userRepository.findById(userId);
-        Optional<Item> itemOpt = itemRepository.findById(itemId);
+        if (userOpt.isEmpty()) {
+            return LendingResult.Failure.UNKNOWN_USER;
+        }
+
+        // only known users are tracked by the policy
+        LendingPolicy.Permit permit = lendingPolicy.tryAcquire(userOpt.get().getUserId());
+        if (permit != LendingPolicy.Permit.ALLOWED) {
+            return toFailure(permit);
+        }
 
-        if (userOpt.isEmpty() || itemOpt.isEmpty()) {
-            return false;
+        Optional<Item> itemOpt = itemRepository.findById(itemId);
+        if (itemOpt.isEmpty()) {
+            return LendingResult.Failure.UNKNOWN_ITEM;
         }
 
         Item item = itemOpt.get();
         User user = userOpt.get();
 
         if (!item.isAvailable()) {
-            return false;
+            return LendingResult.Failure.ALREADY_BORROWED;
+        }
+
+        permit = lendingPolicy.tryStartLoan(user.getUserId());
+        if (permit != LendingPolicy.Permit.ALLOWED) {
+            return toFailure(permit);
         }
 
         item.setBorrower(user);
@@ -113,7 +171,7 @@ public class LendingService {
                 "Item Borrowed",
                 "You have successfully borrowed: " + item.getName());
 
-        return true;
+        return new LendingResult.Success(user, item);
     }
 
     /**
@@ -123,21 +181,32 @@ public class LendingService {
      * @return true if the item was successfully returned, false otherwise
      */
     public boolean returnItem(int id) {
+        return tryReturnItem(id).isSuccess();
+    }
+
+    /**
+     * Return an item. The borrower will be sent an notification about the return.
+     * 
+     * @param id The ID of the item to return
+     * @return the former borrower and the item on success, otherwise the reason for the failure
+     */
+    public LendingResult tryReturnItem(int id) {
         Optional<Item> itemOpt = itemRepository.findById(id);
 
         if (itemOpt.isEmpty()) {
-            return false;
+            return LendingResult.Failure.UNKNOWN_ITEM;
         }
 
         Item item = itemOpt.get();
         if (item.isAvailable()) {
-            return false;
+            return LendingResult.Failure.NOT_BORROWED;
         }
 
         User borrower = item.getBorrower();
 
         item.setBorrower(null);
         itemRepository.save(item);
+        lendingPolicy.endLoan(borrower.getUserId());
 
         // Send notification to the borrower
         notificationService.sendNotification(
@@ -145,7 +214,7 @@ public class LendingService {
                 "Item Returned",
                 "You have successfully returned: " + item.getName());
 
-        return true;
+        return new LendingResult.Success(borrower, item);
     }
 
     /**
@@ -191,8 +260,18 @@ public class LendingService {
                 notificationService.sendReminder(
                         user.getEmail(),
                         subject,
-                        message);
+                        message,
+                        itemId);
             }
         }
     }
+
+    private static LendingResult.Failure toFailure(LendingPolicy.Permit permit) {
+        return switch (permit) {
+            case RATE_LIMITED -> LendingResult.Failure.RATE_LIMITED;
+            case QUOTA_EXCEEDED -> LendingResult.Failure.QUOTA_EXCEEDED;
+            case TOO_MANY_USERS -> LendingResult.Failure.SERVICE_BUSY;
+            case ALLOWED -> throw new IllegalArgumentException("Not a failure: " + permit);
+        };
+    }
 }
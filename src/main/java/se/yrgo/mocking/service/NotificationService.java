@@ -25,4 +25,19 @@ public interface NotificationService {
      * @return true if the reminder was sent successfully, false otherwise
      */
     boolean sendReminder(String userEmail, String subject, String message);
+
+    /**
+     * Send a reminder about a borrowed item. The item ID makes it possible
+     * to tell reminders about different items apart, even if the items have
+     * the same name. By default the item ID is not used.
+     * 
+     * @param userEmail The email address of the user
+     * @param subject The subject of the reminder
+     * @param message The message content
+     * @param itemId The ID of the borrowed item
+     * @return true if the reminder was sent successfully, false otherwise
+     */
+    default boolean sendReminder(String userEmail, String subject, String message, int itemId) {
+        return sendReminder(userEmail, subject, message);
+    }
 }
@@ -0,0 +1,341 @@
+package se.yrgo.mocking.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import se.yrgo.mocking.model.*;
+import se.yrgo.mocking.repository.*;
+
+/**
+ * Lending service that partitions the items by ID into a number of shards.
+ * Every shard owns its own item repository and is only ever accessed from
+ * its own single-threaded executor, so no locking of the items is needed.
+ *
+ * Operations on a single item are routed to the shard owning that item while
+ * queries over all items are sent to every shard and the results are merged.
+ *
+ * The items given to and returned from the service are copies, so the items
+ * owned by a shard are never seen by another thread.
+ *
+ * Notifications are sent from a separate pool of threads, so a slow notification
+ * service does not hold up the shards. If too many notifications are waiting,
+ * the shard sends the notification itself, which slows down the callers instead
+ * of letting the queue grow. Notifications that fail are logged.
+ *
+ * Users are shared between the shards, so the given user repository must be
+ * safe to use from several threads at once.
+ *
+ */
+public class ShardedLendingService implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(ShardedLendingService.class.getName());
+    private static final int QUEUED_NOTIFICATIONS_PER_SHARD = 1000;
+
+    private final List<LendingService> shards;
+    private final List<ExecutorService> executors;
+    private final ExecutorService notificationExecutor;
+
+    /**
+     * Create a new ShardedLendingService with one shard per given item repository.
+     *
+     * @param itemRepositories the item repositories, one for each shard
+     * @param userRepository the thread safe user repository shared by all shards
+     * @param notificationService the notification service
+     *
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IllegalArgumentException if no item repositories are given
+     */
+    public ShardedLendingService(List<ItemRepository> itemRepositories,
+            UserRepository userRepository,
+            NotificationService notificationService) {
+        this(itemRepositories, userRepository, notificationService, LendingPolicy.unlimited());
+    }
+
+    /**
+     * Create a new ShardedLendingService with one shard per given item repository
+     * and a policy shared by all shards.
+     *
+     * @param itemRepositories the item repositories, one for each shard
+     * @param userRepository the thread safe user repository shared by all shards
+     * @param notificationService the notification service
+     * @param lendingPolicy the policy for rate limits and loan quotas
+     *
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IllegalArgumentException if no item repositories are given
+     */
+    public ShardedLendingService(List<ItemRepository> itemRepositories,
+            UserRepository userRepository,
+            NotificationService notificationService,
+            LendingPolicy lendingPolicy) {
+
+        Objects.requireNonNull(itemRepositories);
+        Objects.requireNonNull(userRepository);
+        Objects.requireNonNull(notificationService);
+        Objects.requireNonNull(lendingPolicy);
+
+        if (itemRepositories.isEmpty()) {
+            throw new IllegalArgumentException("At least one item repository is needed");
+        }
+
+        int shardCount = itemRepositories.size();
+        this.notificationExecutor = new ThreadPoolExecutor(shardCount, shardCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(shardCount * QUEUED_NOTIFICATIONS_PER_SHARD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        NotificationService notifications = new AsyncNotificationService(notificationService, notificationExecutor);
+
+        List<LendingService> services = new ArrayList<>();
+        List<ExecutorService> threads = new ArrayList<>();
+        for (var itemRepository : itemRepositories) {
+            services.add(new LendingService(itemRepository, userRepository, notifications, lendingPolicy));
+            threads.add(Executors.newSingleThreadExecutor());
+        }
+
+        this.shards = List.copyOf(services);
+        this.executors = List.copyOf(threads);
+    }
+
+    /**
+     * Get the number of shards used.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Add a new item to the shard owning its ID.
+     *
+     * @param item The item to add, a copy of it is stored
+     * @return A copy of the added item
+     * @throws IllegalArgumentException if item with same ID already exists
+     */
+    public Item addItem(Item item) {
+        Objects.requireNonNull(item);
+
+        Item owned = copyOf(item);
+        return onShard(item.getId(), service -> copyOf(service.addItem(owned)));
+    }
+
+    /**
+     * Register a new user. The user id and the user e-mail must not be present in the
+     * user repository allready.
+     *
+     * @param user The user to register
+     * @return The registered user
+     *
+     * @throws IllegalArgumentException if user with same ID or email already exists
+     * @throws NullPointerException if user is null
+     */
+    public User registerUser(User user) {
+        Objects.requireNonNull(user);
+
+        // all shards share the users, so let the first one do the registration
+        return onShard(0, service -> service.registerUser(user));
+    }
+
+    /**
+     * Borrow an item for a user. The borrower will be sent an notification about the loan.
+     *
+     * @param userId The ID of the user borrowing the item
+     * @param itemId The ID of the item to borrow
+     * @return true if the item was successfully borrowed, false otherwise
+     */
+    public boolean borrowItem(String userId, int itemId) {
+        return tryBorrowItem(userId, itemId).isSuccess();
+    }
+
+    /**
+     * Borrow an item for a user. The borrower will be sent an notification about the loan.
+     *
+     * @param userId The ID of the user borrowing the item
+     * @param itemId The ID of the item to borrow
+     * @return the user and item on success, otherwise the reason for the failure
+     */
+    public LendingResult tryBorrowItem(String userId, int itemId) {
+        return onShard(itemId, service -> copyOf(service.tryBorrowItem(userId, itemId)));
+    }
+
+    /**
+     * Return an item. The borrower will be sent an notification about the return.
+     *
+     * @param id The ID of the item to return
+     * @return true if the item was successfully returned, false otherwise
+     */
+    public boolean returnItem(int id) {
+        return tryReturnItem(id).isSuccess();
+    }
+
+    /**
+     * Return an item. The borrower will be sent an notification about the return.
+     *
+     * @param id The ID of the item to return
+     * @return the former borrower and the item on success, otherwise the reason for the failure
+     */
+    public LendingResult tryReturnItem(int id) {
+        return onShard(id, service -> copyOf(service.tryReturnItem(id)));
+    }
+
+    /**
+     * Search for items by name in all shards.
+     *
+     * @param name The name to search for
+     * @return List of items with the given name
+     */
+    public List<Item> searchItemsByName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be null or empty");
+        }
+
+        return onAllShards(service -> service.searchItemsByName(name));
+    }
+
+    /**
+     * Get all available items from all shards.
+     *
+     * @return List of available items
+     */
+    public List<Item> getAvailableItems() {
+        return onAllShards(LendingService::getAvailableItems);
+    }
+
+    /**
+     * Send reminders for the given items to those that have borrowed them.
+     * Every shard is only given the items it owns.
+     *
+     * @param items List of items to get reminded of
+     */
+    public void sendReminders(List<Integer> items) {
+        List<List<Integer>> perShard = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            perShard.add(new ArrayList<>());
+        }
+
+        for (int itemId : items) {
+            perShard.get(shardOf(itemId)).add(itemId);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            List<Integer> shardItems = perShard.get(i);
+            if (!shardItems.isEmpty()) {
+                LendingService service = shards.get(i);
+                futures.add(CompletableFuture.runAsync(() -> service.sendReminders(shardItems), executors.get(i)));
+            }
+        }
+
+        futures.forEach(ShardedLendingService::await);
+    }
+
+    /**
+     * Stop all the shard and notification threads. Already submitted work,
+     * including the notifications, will be finished.
+     */
+    @Override
+    public void close() {
+        executors.forEach(ExecutorService::shutdown);
+
+        // the shards may still queue notifications until they are done
+        try {
+            for (var executor : executors) {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        notificationExecutor.shutdown();
+    }
+
+    private int shardOf(int itemId) {
+        return Math.floorMod(itemId, shards.size());
+    }
+
+    private <T> T onShard(int itemId, Function<LendingService, T> operation) {
+        int shard = shardOf(itemId);
+        LendingService service = shards.get(shard);
+        return await(CompletableFuture.supplyAsync(() -> operation.apply(service), executors.get(shard)));
+    }
+
+    private List<Item> onAllShards(Function<LendingService, List<Item>> query) {
+        List<CompletableFuture<List<Item>>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            LendingService service = shards.get(i);
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> query.apply(service).stream().map(ShardedLendingService::copyOf).toList(),
+                    executors.get(i)));
+        }
+
+        List<Item> result = new ArrayList<>();
+        for (var future : futures) {
+            result.addAll(await(future));
+        }
+        return result;
+    }
+
+    private static Item copyOf(Item item) {
+        Item copy = new Item(item.getId(), item.getName(), item.getModelName());
+        copy.setBorrower(item.getBorrower());
+        return copy;
+    }
+
+    private static LendingResult copyOf(LendingResult result) {
+        if (result instanceof LendingResult.Success success) {
+            return new LendingResult.Success(success.user(), copyOf(success.item()));
+        }
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        }
+        catch (CompletionException ex) {
+            // let the caller see the same exceptions as from a plain LendingService
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private static class AsyncNotificationService implements NotificationService {
+        private final NotificationService delegate;
+        private final Executor executor;
+
+        AsyncNotificationService(NotificationService delegate, Executor executor) {
+            this.delegate = delegate;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean sendNotification(String userEmail, String subject, String message) {
+            executor.execute(() -> report(userEmail, () -> delegate.sendNotification(userEmail, subject, message)));
+            return true;
+        }
+
+        @Override
+        public boolean sendReminder(String userEmail, String subject, String message) {
+            executor.execute(() -> report(userEmail, () -> delegate.sendReminder(userEmail, subject, message)));
+            return true;
+        }
+
+        @Override
+        public boolean sendReminder(String userEmail, String subject, String message, int itemId) {
+            executor.execute(() -> report(userEmail, () -> delegate.sendReminder(userEmail, subject, message, itemId)));
+            return true;
+        }
+
+        private static void report(String userEmail, BooleanSupplier send) {
+            try {
+                if (!send.getAsBoolean()) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Failed to send notification to " + userEmail);
+                }
+            }
+            catch (RuntimeException ex) {
+                LOGGER.log(System.Logger.Level.WARNING, "Failed to send notification to " + userEmail, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package se.yrgo.mocking.service.impl;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import se.yrgo.mocking.service.*;
+
+/**
+ * Notification service that buffers the notifications to each recipient for a
+ * short window and then sends them as a single digest using another notification
+ * service.
+ *
+ * Reminders about an item are only sent once within a configurable period, so
+ * running the reminders several times does not send them again. Only reminders
+ * given an item ID are deduplicated, and only against reminders to the same
+ * recipient about the same item. Notifications are never deduplicated.
+ *
+ * Since the messages are sent later, the methods return true as soon as a
+ * message has been accepted for sending. Messages that could not be sent are
+ * logged. The background thread does not keep the JVM alive, so close the
+ * service to send the buffered messages before exiting.
+ *
+ */
+public class CoalescingNotificationService implements NotificationService, AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(CoalescingNotificationService.class.getName());
+
+    private final NotificationService delegate;
+    private final long windowNanos;
+    private final long reminderPeriodNanos;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier clock;
+
+    private final Map<Recipient, List<Message>> pending = new HashMap<>();
+    // reminders waiting to be sent or being sent right now
+    private final Set<ReminderKey> queuedReminders = new HashSet<>();
+    // in the order they were sent, so the oldest can be removed from the front
+    private final LinkedHashMap<ReminderKey, Long> sentReminders = new LinkedHashMap<>();
+    private boolean closed;
+
+    /**
+     * Create a new CoalescingNotificationService.
+     *
+     * @param delegate the notification service that sends the digests
+     * @param window the time to collect messages to a recipient before sending them
+     * @param reminderPeriod the time within which a reminder about the same item is not sent again
+     *
+     * @throws NullPointerException if any of the parameters are null
+     * @throws IllegalArgumentException if any of the durations are negative
+     */
+    public CoalescingNotificationService(NotificationService delegate, Duration window, Duration reminderPeriod) {
+        this(delegate, window, reminderPeriod,
+                Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "notification-coalescer");
+                    thread.setDaemon(true);
+                    return thread;
+                }),
+                System::nanoTime);
+    }
+
+    CoalescingNotificationService(NotificationService delegate, Duration window, Duration reminderPeriod,
+            ScheduledExecutorService scheduler, LongSupplier clock) {
+
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(window);
+        Objects.requireNonNull(reminderPeriod);
+        Objects.requireNonNull(scheduler);
+        Objects.requireNonNull(clock);
+
+        if (window.isNegative() || reminderPeriod.isNegative()) {
+            throw new IllegalArgumentException("Durations must not be negative");
+        }
+
+        this.delegate = delegate;
+        this.windowNanos = window.toNanos();
+        this.reminderPeriodNanos = reminderPeriod.toNanos();
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean sendNotification(String userEmail, String subject, String message) {
+        return enqueue(new Message("notification", userEmail, subject, message, null));
+    }
+
+    @Override
+    public boolean sendReminder(String userEmail, String subject, String message) {
+        return enqueue(new Message("reminder", userEmail, subject, message, null));
+    }
+
+    @Override
+    public boolean sendReminder(String userEmail, String subject, String message, int itemId) {
+        return enqueue(new Message("reminder", userEmail, subject, message, new ReminderKey(userEmail, itemId)));
+    }
+
+    /**
+     * Send all buffered messages and stop the background thread. No more
+     * messages are accepted after this.
+     */
+    @Override
+    public void close() {
+        List<Recipient> recipients;
+        synchronized (this) {
+            closed = true;
+            recipients = new ArrayList<>(pending.keySet());
+        }
+
+        scheduler.shutdown();
+
+        recipients.forEach(this::flush);
+    }
+
+    private boolean enqueue(Message msg) {
+        Objects.requireNonNull(msg.userEmail());
+        Objects.requireNonNull(msg.subject());
+        Objects.requireNonNull(msg.message());
+
+        Recipient recipient = new Recipient(msg.kind(), msg.userEmail());
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The notification service is closed");
+            }
+
+            ReminderKey key = msg.reminderKey();
+            if (key != null) {
+                if (queuedReminders.contains(key) || recentlySent(key)) {
+                    return true;
+                }
+                queuedReminders.add(key);
+            }
+
+            List<Message> messages = pending.get(recipient);
+            if (messages == null) {
+                messages = new ArrayList<>();
+                pending.put(recipient, messages);
+                scheduler.schedule(() -> flush(recipient), windowNanos, TimeUnit.NANOSECONDS);
+            }
+
+            messages.add(msg);
+        }
+
+        return true;
+    }
+
+    private boolean recentlySent(ReminderKey key) {
+        long now = clock.getAsLong();
+        Iterator<Long> oldest = sentReminders.values().iterator();
+        while (oldest.hasNext() && now - oldest.next() >= reminderPeriodNanos) {
+            oldest.remove();
+        }
+
+        return sentReminders.containsKey(key);
+    }
+
+    private synchronized void reminderDone(List<Message> messages, boolean sent) {
+        long now = clock.getAsLong();
+        for (Message msg : messages) {
+            ReminderKey key = msg.reminderKey();
+            if (key != null) {
+                queuedReminders.remove(key);
+                if (sent) {
+                    // remove first to move it to the end of the order
+                    sentReminders.remove(key);
+                    sentReminders.put(key, now);
+                }
+            }
+        }
+    }
+
+    private void flush(Recipient recipient) {
+        List<Message> messages;
+        synchronized (this) {
+            messages = pending.remove(recipient);
+        }
+
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+
+        String subject;
+        String message;
+        if (messages.size() == 1) {
+            subject = messages.get(0).subject();
+            message = messages.get(0).message();
+        } else {
+            subject = String.format("You have %d new %ss", messages.size(), recipient.kind());
+            StringJoiner joiner = new StringJoiner(" ");
+            messages.forEach(msg -> joiner.add(msg.subject() + ": " + msg.message()));
+            message = joiner.toString();
+        }
+
+        boolean sent = false;
+        try {
+            if (recipient.kind().equals("reminder")) {
+                sent = delegate.sendReminder(recipient.userEmail(), subject, message);
+            } else {
+                sent = delegate.sendNotification(recipient.userEmail(), subject, message);
+            }
+
+            if (!sent) {
+                LOGGER.log(System.Logger.Level.WARNING,
+                        "Failed to send " + messages.size() + " " + recipient.kind() + "(s) to " + recipient.userEmail());
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "Failed to send " + messages.size() + " " + recipient.kind() + "(s) to " + recipient.userEmail(), ex);
+        } finally {
+            reminderDone(messages, sent);
+        }
+    }
+
+    private record Recipient(String kind, String userEmail) {
+    }
+
+    private record ReminderKey(String userEmail, int itemId) {
+    }
+
+    private record Message(String kind, String userEmail, String subject, String message, ReminderKey reminderKey) {
+    }
+}
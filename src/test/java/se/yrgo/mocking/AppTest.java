@@ -0,0 +1,105 @@
+package se.yrgo.mocking;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import se.yrgo.mocking.model.*;
+import se.yrgo.mocking.service.*;
+
+class AppTest {
+    private final LendingService lendingService = mock(LendingService.class);
+    private final App app = new App(lendingService);
+
+    private final User anna = new User("u1", "Anna", "anna@example.com");
+    private final Item drill = new Item(1, "Drill", "Bosch X");
+
+    private List<String> runBatch(String commands) throws IOException {
+        StringWriter out = new StringWriter();
+        app.runBatch(new StringReader(commands), out);
+        return out.toString().lines().toList();
+    }
+
+    @Test
+    void itemCommandAddsItemWithRestOfLineAsModel() throws IOException {
+        when(lendingService.addItem(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<String> output = runBatch("ITEM 1 Drill Bosch X\n");
+
+        ArgumentCaptor<Item> item = ArgumentCaptor.forClass(Item.class);
+        verify(lendingService).addItem(item.capture());
+        assertThat(item.getValue().getId()).isEqualTo(1);
+        assertThat(item.getValue().getName()).isEqualTo("Drill");
+        assertThat(item.getValue().getModelName()).isEqualTo("Bosch X");
+        assertThat(output).containsExactly("OK 1 - Drill, Bosch X [Available]");
+    }
+
+    @Test
+    void userCommandRegistersUserWithRestOfLineAsName() throws IOException {
+        when(lendingService.registerUser(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<String> output = runBatch("user u1 anna@example.com Anna Andersson\n");
+
+        assertThat(output).containsExactly("OK u1 - Anna Andersson (anna@example.com)");
+    }
+
+    @Test
+    void borrowAndReturnReportTheResult() throws IOException {
+        when(lendingService.tryBorrowItem("u1", 1)).thenReturn(new LendingResult.Success(anna, drill));
+        when(lendingService.tryBorrowItem("u1", 2)).thenReturn(LendingResult.Failure.UNKNOWN_ITEM);
+        when(lendingService.tryReturnItem(1)).thenReturn(LendingResult.Failure.NOT_BORROWED);
+
+        List<String> output = runBatch("BORROW u1 1\nBORROW u1 2\nRETURN 1\n");
+
+        assertThat(output).containsExactly(
+                "OK 1 - Drill, Bosch X [Available]",
+                "ERROR UNKNOWN_ITEM",
+                "ERROR NOT_BORROWED");
+    }
+
+    @Test
+    void searchUsesRestOfLineAsName() throws IOException {
+        when(lendingService.searchItemsByName("Bosch X")).thenReturn(List.of(drill));
+
+        List<String> output = runBatch("SEARCH Bosch X\n");
+
+        assertThat(output).containsExactly("OK [1 - Drill, Bosch X [Available]]");
+    }
+
+    @Test
+    void emptyLinesAndCommentsAreIgnored() throws IOException {
+        when(lendingService.getAvailableItems()).thenReturn(List.of());
+
+        List<String> output = runBatch("\n# a comment\n   \nAVAILABLE\n");
+
+        assertThat(output).containsExactly("OK []");
+    }
+
+    @Test
+    void badCommandsAreReportedAndDoNotStopTheBatch() throws IOException {
+        when(lendingService.getAvailableItems()).thenReturn(List.of());
+
+        List<String> output = runBatch("FOO\nBORROW u1\nRETURN x\nAVAILABLE\n");
+
+        assertThat(output).containsExactly(
+                "ERROR Unknown command: FOO",
+                "ERROR Too few arguments to BORROW",
+                "ERROR For input string: \"x\"",
+                "OK []");
+    }
+
+    @Test
+    void exceptionWithoutMessageIsReportedByType() throws IOException {
+        when(lendingService.tryReturnItem(1)).thenThrow(new NullPointerException());
+
+        List<String> output = runBatch("RETURN 1\n");
+
+        assertThat(output).containsExactly("ERROR NullPointerException");
+    }
+}
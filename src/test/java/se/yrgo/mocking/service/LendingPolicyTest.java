@@ -0,0 +1,129 @@
+package se.yrgo.mocking.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static se.yrgo.mocking.service.LendingPolicy.Permit.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.*;
+
+class LendingPolicyTest {
+    private static final long MILLIS = 1_000_000L;
+
+    private final AtomicLong now = new AtomicLong();
+
+    private LendingPolicy policy(int maxTrackedUsers) {
+        // 2 loans, a token every 100 ms, burst of 3, idle after 1 s
+        return new LendingPolicy(2, 10, 3, maxTrackedUsers, Duration.ofSeconds(1), now::get);
+    }
+
+    @Test
+    void burstIsAllowedThenLimited() {
+        LendingPolicy policy = policy(10);
+
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(RATE_LIMITED);
+    }
+
+    @Test
+    void bucketIsRefilledOverTime() {
+        LendingPolicy policy = policy(10);
+        for (int i = 0; i < 3; i++) {
+            policy.tryAcquire("u1");
+        }
+
+        now.addAndGet(100 * MILLIS);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(RATE_LIMITED);
+
+        now.addAndGet(300 * MILLIS);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(RATE_LIMITED);
+    }
+
+    @Test
+    void usersHaveSeparateBuckets() {
+        LendingPolicy policy = policy(10);
+        for (int i = 0; i < 3; i++) {
+            policy.tryAcquire("u1");
+        }
+
+        assertThat(policy.tryAcquire("u2")).isEqualTo(ALLOWED);
+    }
+
+    @Test
+    void loansAreLimitedByQuota() {
+        LendingPolicy policy = policy(10);
+
+        assertThat(policy.tryStartLoan("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryStartLoan("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryStartLoan("u1")).isEqualTo(QUOTA_EXCEEDED);
+
+        policy.endLoan("u1");
+        assertThat(policy.tryStartLoan("u1")).isEqualTo(ALLOWED);
+    }
+
+    @Test
+    void existingLoansCountTowardsQuota() {
+        LendingPolicy policy = policy(10);
+        policy.countExistingLoan("u1");
+        policy.countExistingLoan("u1");
+
+        assertThat(policy.tryStartLoan("u1")).isEqualTo(QUOTA_EXCEEDED);
+    }
+
+    @Test
+    void newUserIsRefusedWhenAllTrackedUsersHaveLoans() {
+        LendingPolicy policy = policy(2);
+        policy.tryStartLoan("u1");
+        policy.tryStartLoan("u2");
+        now.addAndGet(10_000 * MILLIS);
+
+        assertThat(policy.tryStartLoan("u3")).isEqualTo(TOO_MANY_USERS);
+        assertThat(policy.tryAcquire("u3")).isEqualTo(TOO_MANY_USERS);
+
+        policy.endLoan("u1");
+        now.addAndGet(10_000 * MILLIS);
+        assertThat(policy.tryStartLoan("u3")).isEqualTo(ALLOWED);
+        assertThat(policy.tryStartLoan("u4")).isEqualTo(TOO_MANY_USERS);
+    }
+
+    @Test
+    void rateLimitedUserIsNotEvicted() {
+        LendingPolicy policy = policy(2);
+        for (int i = 0; i < 3; i++) {
+            policy.tryAcquire("v");
+        }
+
+        for (int i = 0; i < 10; i++) {
+            policy.tryAcquire("other" + i);
+        }
+
+        assertThat(policy.tryAcquire("v")).isEqualTo(RATE_LIMITED);
+    }
+
+    @Test
+    void idleUserIsEvictedWhenFull() {
+        LendingPolicy policy = policy(1);
+        assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+        assertThat(policy.tryAcquire("u2")).isEqualTo(TOO_MANY_USERS);
+
+        now.addAndGet(2_000 * MILLIS);
+        assertThat(policy.tryAcquire("u2")).isEqualTo(ALLOWED);
+    }
+
+    @Test
+    void unlimitedAllowsEverything() {
+        LendingPolicy policy = LendingPolicy.unlimited();
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(policy.tryAcquire("u1")).isEqualTo(ALLOWED);
+            assertThat(policy.tryStartLoan("u1")).isEqualTo(ALLOWED);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package se.yrgo.mocking.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.*;
+
+import org.junit.jupiter.api.*;
+
+import se.yrgo.mocking.model.*;
+
+class LendingServiceTest {
+    private final MapItemRepository itemRepository = new MapItemRepository();
+    private final MapUserRepository userRepository = new MapUserRepository();
+    private final NotificationService notificationService = mock(NotificationService.class);
+
+    private final User anna = new User("u1", "Anna", "anna@example.com");
+
+    @BeforeEach
+    void setUp() {
+        userRepository.save(anna);
+        for (int id = 1; id <= 3; id++) {
+            itemRepository.save(new Item(id, "Laptop", "Model " + id));
+        }
+    }
+
+    private LendingService service(int maxLoans, int burst) {
+        LendingPolicy policy = new LendingPolicy(maxLoans, 1, burst, 100, Duration.ofMinutes(1));
+        return new LendingService(itemRepository, userRepository, notificationService, policy);
+    }
+
+    @Test
+    void returnIsNotRateLimited() {
+        LendingService service = service(10, 2);
+        service.tryBorrowItem("u1", 1);
+        service.tryBorrowItem("u1", 2);
+
+        assertThat(service.tryBorrowItem("u1", 3)).isEqualTo(LendingResult.Failure.RATE_LIMITED);
+        assertThat(service.tryReturnItem(1).isSuccess()).isTrue();
+        assertThat(service.tryReturnItem(2).isSuccess()).isTrue();
+    }
+
+    @Test
+    void unknownUserIsNotRateLimited() {
+        LendingService service = service(10, 1);
+
+        assertThat(service.tryBorrowItem("nobody", 1)).isEqualTo(LendingResult.Failure.UNKNOWN_USER);
+        assertThat(service.tryBorrowItem("nobody", 1)).isEqualTo(LendingResult.Failure.UNKNOWN_USER);
+    }
+
+    @Test
+    void existingLoansCountTowardsQuota() {
+        Item borrowed = itemRepository.findById(1).orElseThrow();
+        borrowed.setBorrower(anna);
+
+        LendingService service = service(1, 10);
+
+        assertThat(service.tryBorrowItem("u1", 2)).isEqualTo(LendingResult.Failure.QUOTA_EXCEEDED);
+        assertThat(service.tryReturnItem(1).isSuccess()).isTrue();
+        assertThat(service.tryBorrowItem("u1", 2).isSuccess()).isTrue();
+    }
+}
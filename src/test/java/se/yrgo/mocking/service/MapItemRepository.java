@@ -0,0 +1,42 @@
+package se.yrgo.mocking.service;
+
+import java.util.*;
+
+import se.yrgo.mocking.model.*;
+import se.yrgo.mocking.repository.*;
+
+/**
+ * Simple item repository backed by a map, for tests and benchmarks.
+ *
+ */
+class MapItemRepository implements ItemRepository {
+    private final Map<Integer, Item> items = new HashMap<>();
+
+    @Override
+    public Item save(Item item) {
+        items.put(item.getId(), item);
+        return item;
+    }
+
+    @Override
+    public Optional<Item> findById(int id) {
+        return Optional.ofNullable(items.get(id));
+    }
+
+    @Override
+    public List<Item> findAll() {
+        return new ArrayList<>(items.values());
+    }
+
+    @Override
+    public boolean deleteById(int id) {
+        return items.remove(id) != null;
+    }
+
+    @Override
+    public List<Item> findByName(String name) {
+        return items.values().stream()
+                .filter(item -> item.getName().contains(name))
+                .toList();
+    }
+}
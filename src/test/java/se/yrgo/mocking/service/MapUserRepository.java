@@ -0,0 +1,38 @@
+package se.yrgo.mocking.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import se.yrgo.mocking.model.*;
+import se.yrgo.mocking.repository.*;
+
+/**
+ * Simple thread safe user repository backed by a map, for tests and benchmarks.
+ *
+ */
+class MapUserRepository implements UserRepository {
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    @Override
+    public User save(User user) {
+        users.put(user.getUserId(), user);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findById(String userId) {
+        return Optional.ofNullable(users.get(userId));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return users.values().stream()
+                .filter(user -> email.equals(user.getEmail()))
+                .findFirst();
+    }
+}
@@ -0,0 +1,127 @@
+package se.yrgo.mocking.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import se.yrgo.mocking.model.*;
+import se.yrgo.mocking.repository.*;
+
+/**
+ * Measures the throughput of ShardedLendingService with 1, 2, 4, ... shards up
+ * to the number of processors (at least 4), with several threads borrowing and returning
+ * items at the same time. The same number of callers is used for every run.
+ *
+ * By default the notifications take no time, so only the CPU bound work in the
+ * shards is measured and the scaling is limited by the number of processors.
+ * A time for each notification can be given to model the blocking call to the
+ * notification web service, which is done outside of the shard threads.
+ *
+ * Run with:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes \
+ *     se.yrgo.mocking.service.ShardedLendingServiceBenchmark [notification micros] [seconds per run]
+ * </pre>
+ *
+ */
+public class ShardedLendingServiceBenchmark {
+    private static final int ITEMS = 10_000;
+    private static final int USERS = 1_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        long notificationMicros = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        int maxShards = Math.max(4, Runtime.getRuntime().availableProcessors());
+        List<Integer> shardCounts = new ArrayList<>();
+        for (int shards = 1; shards < maxShards; shards *= 2) {
+            shardCounts.add(shards);
+        }
+        shardCounts.add(maxShards);
+
+        // callers block while waiting for a shard, so use enough of them to keep all shards busy
+        int callers = maxShards * 4;
+
+        System.out.printf("notification %d us, %d callers, %d s per run, %d processors%n",
+                notificationMicros, callers, seconds, Runtime.getRuntime().availableProcessors());
+
+        // warm up the JIT before measuring
+        run(maxShards, callers, notificationMicros, 1);
+
+        double baseline = 0;
+        for (int shards : shardCounts) {
+            double opsPerSecond = run(shards, callers, notificationMicros, seconds);
+            if (baseline == 0) {
+                baseline = opsPerSecond;
+            }
+            System.out.printf("%3d shards: %10.0f ops/s  speedup %5.2f%n", shards, opsPerSecond, opsPerSecond / baseline);
+        }
+    }
+
+    private static double run(int shardCount, int callers, long notificationMicros, int seconds)
+            throws InterruptedException {
+
+        List<ItemRepository> itemRepositories = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            itemRepositories.add(new MapItemRepository());
+        }
+
+        NotificationService notifications = new SlowNotificationService(notificationMicros * 1000);
+
+        try (var service = new ShardedLendingService(itemRepositories, new MapUserRepository(), notifications)) {
+            for (int i = 0; i < USERS; i++) {
+                service.registerUser(new User("u" + i, "User " + i, "u" + i + "@example.com"));
+            }
+            for (int i = 0; i < ITEMS; i++) {
+                service.addItem(new Item(i, "Item " + i, "Model " + i));
+            }
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            LongAdder operations = new LongAdder();
+            ExecutorService pool = Executors.newFixedThreadPool(callers);
+            for (int i = 0; i < callers; i++) {
+                pool.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        int itemId = random.nextInt(ITEMS);
+                        service.borrowItem("u" + random.nextInt(USERS), itemId);
+                        service.returnItem(itemId);
+                        operations.add(2);
+                    }
+                });
+            }
+
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            running.set(false);
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+
+            return operations.sum() * 1e9 / elapsed;
+        }
+    }
+
+    private static class SlowNotificationService implements NotificationService {
+        private final long nanos;
+
+        SlowNotificationService(long nanos) {
+            this.nanos = nanos;
+        }
+
+        @Override
+        public boolean sendNotification(String userEmail, String subject, String message) {
+            if (nanos > 0) {
+                LockSupport.parkNanos(nanos);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean sendReminder(String userEmail, String subject, String message) {
+            return sendNotification(userEmail, subject, message);
+        }
+    }
+}
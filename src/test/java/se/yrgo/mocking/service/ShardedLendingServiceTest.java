@@ -0,0 +1,91 @@
+package se.yrgo.mocking.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import se.yrgo.mocking.model.*;
+import se.yrgo.mocking.repository.*;
+
+class ShardedLendingServiceTest {
+    private static final int SHARDS = 3;
+
+    private NotificationService notificationService;
+    private ShardedLendingService service;
+
+    @BeforeEach
+    void setUp() {
+        notificationService = mock(NotificationService.class);
+
+        List<ItemRepository> itemRepositories = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            itemRepositories.add(new MapItemRepository());
+        }
+
+        service = new ShardedLendingService(itemRepositories, new MapUserRepository(), notificationService);
+        service.registerUser(new User("u1", "Anna", "anna@example.com"));
+        for (int id = 0; id < 6; id++) {
+            service.addItem(new Item(id, "Laptop " + id, "Model " + id));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void queriesIncludeItemsFromAllShards() {
+        assertThat(service.getAvailableItems())
+                .extracting(Item::getId)
+                .containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5);
+        assertThat(service.searchItemsByName("Laptop")).hasSize(6);
+    }
+
+    @Test
+    void borrowOnAShardIsVisibleInQueries() {
+        assertThat(service.borrowItem("u1", 4)).isTrue();
+
+        assertThat(service.getAvailableItems())
+                .extracting(Item::getId)
+                .containsExactlyInAnyOrder(0, 1, 2, 3, 5);
+        assertThat(service.tryBorrowItem("u1", 4)).isEqualTo(LendingResult.Failure.ALREADY_BORROWED);
+
+        assertThat(service.returnItem(4)).isTrue();
+        assertThat(service.getAvailableItems()).hasSize(6);
+    }
+
+    @Test
+    void notificationIsSent() {
+        service.borrowItem("u1", 2);
+
+        verify(notificationService, timeout(1000))
+                .sendNotification(eq("anna@example.com"), eq("Item Borrowed"), anyString());
+    }
+
+    @Test
+    void duplicateItemThrowsSameExceptionAsLendingService() {
+        assertThatThrownBy(() -> service.addItem(new Item(5, "Other", "Other")))
+                .isExactlyInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void returnedItemsAreCopies() {
+        Item item = service.getAvailableItems().get(0);
+        item.setBorrower(new User("u2", "Bertil", "bertil@example.com"));
+
+        assertThat(service.getAvailableItems()).hasSize(6);
+    }
+
+    @Test
+    void addedItemIsCopied() {
+        Item item = new Item(10, "Camera", "Model 10");
+        service.addItem(item);
+        item.setBorrower(new User("u2", "Bertil", "bertil@example.com"));
+
+        assertThat(service.getAvailableItems()).extracting(Item::getId).contains(10);
+    }
+}
@@ -0,0 +1,168 @@
+package se.yrgo.mocking.service.impl;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import se.yrgo.mocking.service.*;
+
+class CoalescingNotificationServiceTest {
+    private static final String EMAIL = "anna@example.com";
+
+    private final AtomicLong now = new AtomicLong();
+    private final NotificationService delegate = mock(NotificationService.class);
+    private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+
+    private CoalescingNotificationService service;
+    private int flushed;
+
+    @BeforeEach
+    void setUp() {
+        when(delegate.sendNotification(any(), any(), any())).thenReturn(true);
+        when(delegate.sendReminder(any(), any(), any())).thenReturn(true);
+
+        service = new CoalescingNotificationService(delegate, Duration.ofSeconds(5), Duration.ofHours(1),
+                scheduler, now::get);
+    }
+
+    // run the flushes scheduled since the last call, as if the window had passed
+    private void passWindow() {
+        ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, atLeast(0)).schedule(tasks.capture(), anyLong(), any(TimeUnit.class));
+
+        List<Runnable> all = tasks.getAllValues();
+        List<Runnable> unflushed = new ArrayList<>(all.subList(flushed, all.size()));
+        flushed = all.size();
+        unflushed.forEach(Runnable::run);
+    }
+
+    @Test
+    void notificationsWithinWindowAreMerged() {
+        service.sendNotification(EMAIL, "Item Borrowed", "You have successfully borrowed: Laptop");
+        service.sendNotification(EMAIL, "Item Returned", "You have successfully returned: Camera");
+        verifyNoInteractions(delegate);
+
+        passWindow();
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(delegate).sendNotification(eq(EMAIL), eq("You have 2 new notifications"), message.capture());
+        verifyNoMoreInteractions(delegate);
+
+        assertThat(message.getValue()).contains("borrowed: Laptop", "returned: Camera");
+    }
+
+    @Test
+    void identicalNotificationsAreNotDropped() {
+        service.sendNotification(EMAIL, "Item Borrowed", "You have successfully borrowed: Laptop");
+        service.sendNotification(EMAIL, "Item Borrowed", "You have successfully borrowed: Laptop");
+
+        passWindow();
+
+        verify(delegate).sendNotification(eq(EMAIL), eq("You have 2 new notifications"), anyString());
+    }
+
+    @Test
+    void singleMessageIsSentAsIs() {
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+
+        passWindow();
+
+        verify(delegate).sendReminder(EMAIL, "Reminder", "Return it");
+    }
+
+    @Test
+    void reminderAboutSameItemIsSentOnceWithinPeriod() {
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+
+        now.addAndGet(Duration.ofMinutes(30).toNanos());
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+
+        verify(delegate, times(1)).sendReminder(EMAIL, "Reminder", "Return it");
+
+        now.addAndGet(Duration.ofMinutes(31).toNanos());
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+
+        verify(delegate, times(2)).sendReminder(EMAIL, "Reminder", "Return it");
+    }
+
+    @Test
+    void remindersAboutDifferentItemsAreKept() {
+        service.sendReminder(EMAIL, "Reminder about item Laptop", "Return it", 1);
+        service.sendReminder(EMAIL, "Reminder about item Laptop", "Return it", 2);
+
+        passWindow();
+
+        verify(delegate).sendReminder(eq(EMAIL), eq("You have 2 new reminders"), anyString());
+    }
+
+    @Test
+    void failedReminderIsSentAgain() {
+        when(delegate.sendReminder(any(), any(), any())).thenReturn(false, true);
+
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+
+        verify(delegate, times(2)).sendReminder(EMAIL, "Reminder", "Return it");
+    }
+
+    @Test
+    void reminderIsSentAgainAfterException() {
+        when(delegate.sendReminder(any(), any(), any()))
+                .thenThrow(new IllegalArgumentException("bad e-mail"))
+                .thenReturn(true);
+
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        assertThatCode(this::passWindow).doesNotThrowAnyException();
+
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+
+        verify(delegate, times(2)).sendReminder(EMAIL, "Reminder", "Return it");
+    }
+
+    @Test
+    void reminderBeingSentIsNotQueuedAgain() {
+        when(delegate.sendReminder(any(), any(), any())).thenAnswer(invocation -> {
+            // another run of the reminders while the first is being sent
+            service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+            return true;
+        });
+
+        service.sendReminder(EMAIL, "Reminder", "Return it", 1);
+        passWindow();
+        passWindow();
+
+        verify(delegate, times(1)).sendReminder(EMAIL, "Reminder", "Return it");
+    }
+
+    @Test
+    void closeSendsPendingMessages() {
+        service.sendNotification(EMAIL, "Item Borrowed", "You have successfully borrowed: Laptop");
+
+        service.close();
+
+        verify(delegate).sendNotification(EMAIL, "Item Borrowed", "You have successfully borrowed: Laptop");
+        verify(scheduler).shutdown();
+    }
+
+    @Test
+    void messagesAreRejectedAfterClose() {
+        service.close();
+
+        assertThatThrownBy(() -> service.sendNotification(EMAIL, "Subject", "Message"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}